@@ -0,0 +1,361 @@
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * AdaptivePatientExtractor - Single entry point over the Stanford CoreNLP,
+ * OpenNLP, gazetteer and regex name engines that picks an engine per
+ * document to stay within a latency budget
+ *
+ * Dates of birth and claim IDs are always found with regex. The time left
+ * in the budget after that goes to name extraction: each engine's cost is
+ * predicted from its recent nanoseconds per character, scaled up by the
+ * number of documents in flight beyond the available processors, and the
+ * most accurate engine whose predicted cost fits is used. Regex is the last
+ * resort and is used whenever nothing else fits, when the chosen engine
+ * fails, or when it finds no names.
+ *
+ * Latency samples are divided by the load at the time they were taken, so
+ * the estimates describe an unloaded engine and load is only counted once.
+ * Estimates decay back toward their starting values when an engine has not
+ * run for a while. When the system is not overloaded, one request in
+ * PROBE_INTERVAL tries a better engine predicted to take at most
+ * PROBE_BUDGET_MULTIPLE times the remaining budget, so one slow run cannot
+ * shut an engine out for good without probes missing the SLA by far.
+ *
+ * Engines are ranked by accuracy times the share of runs that did not
+ * throw. Accuracy starts from fixed priors (CoreNLP > OpenNLP > gazetteer >
+ * regex) and is updated from {@link #recordAccuracy(NameEngine, boolean)}
+ * when reviewed results are available. Failures are tracked separately.
+ * Both decay back toward their starting values, so an engine that failed
+ * or was marked wrong is picked again once it has not been seen failing
+ * for a while.
+ * The engine used for each document is reported through
+ * {@link PatientInfo#getNameEngine()}.
+ */
+public class AdaptivePatientExtractor {
+
+    /**
+     * Name engines in order of preference when accuracy is equal
+     */
+    public enum NameEngine {
+        STANFORD(150_000, 0.90),
+        OPENNLP(15_000, 0.85),
+        GAZETTEER(100, 0.70),
+        REGEX(500, 0.50);
+
+        // Starting estimates; README puts CoreNLP at ~1000 words per second
+        final double initialNanosPerChar;
+        final double initialAccuracy;
+
+        NameEngine(double initialNanosPerChar, double initialAccuracy) {
+            this.initialNanosPerChar = initialNanosPerChar;
+            this.initialAccuracy = initialAccuracy;
+        }
+    }
+
+    // Weight of the newest sample in the moving averages
+    private static final double SMOOTHING = 0.2;
+
+    // Time for a latency estimate to move halfway back to its starting value
+    private static final long DECAY_HALF_LIFE_NANOS = 10_000_000_000L;
+
+    // Time for the failure rate to move halfway back to zero
+    private static final long FAILURE_HALF_LIFE_NANOS = 10_000_000_000L;
+
+    // Time for accuracy from reviewed results to move halfway back to the prior
+    private static final long ACCURACY_HALF_LIFE_NANOS = 3_600_000_000_000L;
+
+    // Requests between attempts at an engine predicted to miss the budget
+    private static final int PROBE_INTERVAL = 20;
+
+    // Largest predicted cost, relative to the remaining budget, that a probe may take
+    private static final double PROBE_BUDGET_MULTIPLE = 2.0;
+
+    private final PatientInformationExtractor stanford;
+    private final OpenNLPPatientExtractor openNlp;
+    private final NameGazetteer gazetteer;
+    private final long defaultBudgetNanos;
+
+    private final Map<NameEngine, EngineStats> stats = new EnumMap<>(NameEngine.class);
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong requests = new AtomicLong();
+    private final int processors = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * @param stanford Stanford extractor; also provides regex names, dates and claim IDs
+     * @param openNlp OpenNLP extractor, or null if not deployed
+     * @param gazetteer Name gazetteer, or null if not deployed
+     * @param defaultBudgetMillis Latency budget used when a request does not give one
+     */
+    public AdaptivePatientExtractor(PatientInformationExtractor stanford, OpenNLPPatientExtractor openNlp,
+                                    NameGazetteer gazetteer, long defaultBudgetMillis) {
+        if (stanford == null) {
+            throw new IllegalArgumentException("A PatientInformationExtractor is required");
+        }
+        this.stanford = stanford;
+        this.openNlp = openNlp;
+        this.gazetteer = gazetteer;
+        this.defaultBudgetNanos = defaultBudgetMillis * 1_000_000L;
+
+        for (NameEngine engine : NameEngine.values()) {
+            stats.put(engine, new EngineStats(engine));
+        }
+    }
+
+    /**
+     * Extract patient information within the default latency budget
+     * @param content Text content containing patient information
+     * @return PatientInfo with the name engine that was used
+     */
+    public PatientInfo extractPatientInfo(String content) {
+        return extract(content, defaultBudgetNanos);
+    }
+
+    /**
+     * Extract patient information within a per-request latency budget
+     * @param content Text content containing patient information
+     * @param budgetMillis Time allowed for this document
+     * @return PatientInfo with the name engine that was used
+     */
+    public PatientInfo extractPatientInfo(String content, long budgetMillis) {
+        return extract(content, budgetMillis * 1_000_000L);
+    }
+
+    /**
+     * Report whether names found by an engine were correct, e.g. from manual review
+     * @param engine Engine that produced the names
+     * @param correct true if the names were right
+     */
+    public void recordAccuracy(NameEngine engine, boolean correct) {
+        stats.get(engine).recordAccuracy(correct);
+    }
+
+    /**
+     * Summary of the current per-engine statistics
+     */
+    public String getEngineStatistics() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("=== NAME ENGINE STATISTICS ===\n");
+        for (NameEngine engine : NameEngine.values()) {
+            sb.append("\n").append(stats.get(engine)).append(isAvailable(engine) ? "" : " (unavailable)");
+        }
+        sb.append("\n\nDocuments in flight: ").append(inFlight.get());
+        return sb.toString();
+    }
+
+    private PatientInfo extract(String content, long budgetNanos) {
+        long start = System.nanoTime();
+        int queued = inFlight.incrementAndGet();
+        try {
+            PatientInfo info = new PatientInfo();
+            info.setDatesOfBirth(stanford.extractDatesOfBirth(content));
+            info.setClaimIds(stanford.extractClaimIds(content));
+
+            long remaining = budgetNanos - (System.nanoTime() - start);
+            double pressure = Math.max(1.0, (double) queued / processors);
+            boolean probe = pressure <= 1.0 && requests.incrementAndGet() % PROBE_INTERVAL == 0;
+
+            NameEngine foundNothing = null;
+            for (NameEngine engine : choose(content.length(), remaining, pressure, probe)) {
+                EngineStats engineStats = stats.get(engine);
+                long engineStart = System.nanoTime();
+                try {
+                    List<String> names = extractNames(engine, content);
+                    engineStats.recordLatency(System.nanoTime() - engineStart, content.length(), pressure);
+                    engineStats.recordOutcome(false);
+                    if (!names.isEmpty()) {
+                        info.setPatientNames(names);
+                        info.setNameEngine(engine.name());
+                        return info;
+                    }
+                    // Like the extractors themselves, fall back to regex when nothing is found
+                    foundNothing = engine;
+                    break;
+                } catch (Exception e) {
+                    // Degrade to the next engine
+                    System.err.println("Error in " + engine + " name extraction: " + e.getMessage());
+                    engineStats.recordLatency(System.nanoTime() - engineStart, content.length(), pressure);
+                    engineStats.recordOutcome(true);
+                }
+            }
+
+            long regexStart = System.nanoTime();
+            List<String> names = stanford.extractNamesWithRegex(content);
+            stats.get(NameEngine.REGEX).recordLatency(System.nanoTime() - regexStart, content.length(), pressure);
+            info.setPatientNames(names);
+            info.setNameEngine(names.isEmpty() && foundNothing != null ? foundNothing.name() : NameEngine.REGEX.name());
+            return info;
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * Order the model and dictionary engines for one document: the best-ranked
+     * engine predicted to fit the budget first (or, when probing, a better one
+     * predicted to take at most PROBE_BUDGET_MULTIPLE times the budget), then
+     * cheaper engines to fall back on if it fails. Regex is not listed; it
+     * always runs last when nothing else produced names.
+     */
+    private List<NameEngine> choose(int length, long remainingNanos, double pressure, boolean probe) {
+        NameEngine best = NameEngine.REGEX;
+        double bestScore = stats.get(NameEngine.REGEX).score();
+        NameEngine probeEngine = null;
+        double probeScore = bestScore;
+
+        for (NameEngine engine : NameEngine.values()) {
+            if (engine == NameEngine.REGEX || !isAvailable(engine)) {
+                continue;
+            }
+            EngineStats engineStats = stats.get(engine);
+            double score = engineStats.score();
+            double predicted = engineStats.predictNanos(length) * pressure;
+            if (predicted <= remainingNanos) {
+                if (score > bestScore) {
+                    best = engine;
+                    bestScore = score;
+                }
+            } else if (predicted <= PROBE_BUDGET_MULTIPLE * remainingNanos && score > probeScore) {
+                probeEngine = engine;
+                probeScore = score;
+            }
+        }
+
+        if (probe && probeEngine != null && probeScore > bestScore) {
+            best = probeEngine;
+        }
+
+        List<NameEngine> order = new ArrayList<>();
+        if (best == NameEngine.REGEX) {
+            return order;
+        }
+        order.add(best);
+        for (NameEngine engine : NameEngine.values()) {
+            if (engine.ordinal() > best.ordinal() && engine != NameEngine.REGEX && isAvailable(engine)) {
+                order.add(engine);
+            }
+        }
+        return order;
+    }
+
+    private boolean isAvailable(NameEngine engine) {
+        switch (engine) {
+            case STANFORD:
+                return stanford.hasNerModels();
+            case OPENNLP:
+                return openNlp != null && openNlp.hasModels();
+            case GAZETTEER:
+                return gazetteer != null;
+            default:
+                return true;
+        }
+    }
+
+    private List<String> extractNames(NameEngine engine, String content) {
+        switch (engine) {
+            case STANFORD:
+                return stanford.extractNamesWithNer(content);
+            case OPENNLP:
+                // NameFinderME is not thread-safe
+                synchronized (openNlp) {
+                    return openNlp.findNamesWithModel(content);
+                }
+            case GAZETTEER:
+                return gazetteer.findNames(content);
+            default:
+                return stanford.extractNamesWithRegex(content);
+        }
+    }
+
+    /**
+     * Moving averages of latency, accuracy and failures for one engine
+     */
+    private static class EngineStats {
+        private final NameEngine engine;
+        private double nanosPerChar;
+        private double accuracy;
+        private double failureRate;
+        private long documents;
+        private long lastSampleNanos;
+        private long lastAccuracyNanos;
+        private long lastOutcomeNanos;
+
+        EngineStats(NameEngine engine) {
+            this.engine = engine;
+            this.nanosPerChar = engine.initialNanosPerChar;
+            this.accuracy = engine.initialAccuracy;
+        }
+
+        /**
+         * @param pressure Load factor when the sample was taken; the stored
+         *                 estimate is for an unloaded engine
+         */
+        synchronized void recordLatency(long nanos, int length, double pressure) {
+            long now = System.nanoTime();
+            double sample = (double) nanos / Math.max(length, 1) / pressure;
+            double current = decayedNanosPerChar(now);
+            nanosPerChar = current + SMOOTHING * (sample - current);
+            lastSampleNanos = now;
+            documents++;
+        }
+
+        synchronized void recordAccuracy(boolean correct) {
+            long now = System.nanoTime();
+            double current = decayedAccuracy(now);
+            accuracy = current + SMOOTHING * ((correct ? 1.0 : 0.0) - current);
+            lastAccuracyNanos = now;
+        }
+
+        synchronized void recordOutcome(boolean failed) {
+            long now = System.nanoTime();
+            double current = decayedFailureRate(now);
+            failureRate = current + SMOOTHING * ((failed ? 1.0 : 0.0) - current);
+            lastOutcomeNanos = now;
+        }
+
+        synchronized double predictNanos(int length) {
+            return decayedNanosPerChar(System.nanoTime()) * length;
+        }
+
+        /**
+         * Ranking used to pick an engine: accuracy discounted by recent failures
+         */
+        synchronized double score() {
+            long now = System.nanoTime();
+            return decayedAccuracy(now) * (1.0 - decayedFailureRate(now));
+        }
+
+        /**
+         * Latency estimate moved back toward the starting value by the time since
+         * the last sample, so an engine that stopped being picked gets retried
+         */
+        private double decayedNanosPerChar(long now) {
+            return decay(nanosPerChar, engine.initialNanosPerChar, now - lastSampleNanos, DECAY_HALF_LIFE_NANOS);
+        }
+
+        private double decayedAccuracy(long now) {
+            return decay(accuracy, engine.initialAccuracy, now - lastAccuracyNanos, ACCURACY_HALF_LIFE_NANOS);
+        }
+
+        private double decayedFailureRate(long now) {
+            return decay(failureRate, 0.0, now - lastOutcomeNanos, FAILURE_HALF_LIFE_NANOS);
+        }
+
+        // A value still at its target is unchanged, so no special case is needed before the first sample
+        private static double decay(double value, double target, long elapsedNanos, long halfLifeNanos) {
+            double weight = Math.pow(0.5, (double) elapsedNanos / halfLifeNanos);
+            return target + weight * (value - target);
+        }
+
+        @Override
+        public synchronized String toString() {
+            long now = System.nanoTime();
+            return String.format("%-9s documents=%d, ns/char=%.1f, accuracy=%.2f, failures=%.2f",
+                    engine, documents, decayedNanosPerChar(now), decayedAccuracy(now), decayedFailureRate(now));
+        }
+    }
+}
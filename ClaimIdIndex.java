@@ -0,0 +1,576 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * ClaimIdIndex - Cross-document index of claim IDs and patient identities
+ * for finding claims referenced by more than one document in a batch
+ *
+ * Each posting is a 128-bit key plus an int document number, held in
+ * primitive arrays. Claim IDs are packed exactly into the key (base 37,
+ * up to 24 characters); name + date of birth pairs are stored as a 127-bit
+ * hash. When the buffer fills up it is sorted and spilled to a run file,
+ * and {@link #build()} merges all runs into one sorted file that is
+ * memory-mapped for lookups.
+ *
+ * Usage:
+ *   index.add("doc-1.txt", extractor.extractPatientInfo(content));
+ *   ...
+ *   index.build();
+ *   index.documentsForClaim("CLM123456789");
+ *   index.claimIdsInMultipleDocuments();
+ */
+public class ClaimIdIndex implements Closeable {
+
+    private static final int RECORD_BYTES = 20; // key hi, key lo, document
+    private static final int CHUNK_SHIFT = 26;  // 2^26 records (1.3GB) per mapped chunk
+    private static final int DEFAULT_MAX_BUFFERED = 4_000_000;
+
+    private static final int CHARS_PER_LONG = 12;
+    private static final int MAX_CLAIM_ID_LENGTH = 2 * CHARS_PER_LONG;
+    private static final String ALPHABET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+
+    private final int maxBuffered;
+    private final Path spillDirectory;
+
+    // Document names are few compared to postings, so they stay on the heap
+    private final List<String> documents = new ArrayList<>();
+    private final Map<String, Integer> documentNumbers = new HashMap<>();
+
+    private long[] keyHi;
+    private long[] keyLo;
+    private int[] docs;
+    private int buffered;
+
+    private final List<Path> runs = new ArrayList<>();
+    private Path mergedFile;
+    private MappedByteBuffer[] mergedChunks = new MappedByteBuffer[0];
+    private long mergedCount;
+
+    // Claim IDs that could not be encoded (too long or not alphanumeric)
+    private long droppedClaimIds;
+
+    /**
+     * Create an index that buffers up to 4 million postings (about 80MB)
+     * before spilling to the system temp directory
+     */
+    public ClaimIdIndex() {
+        this(DEFAULT_MAX_BUFFERED, System.getProperty("java.io.tmpdir"));
+    }
+
+    /**
+     * @param maxBufferedPostings Postings held in memory before spilling a run
+     * @param spillDirectory Directory for run and merged files
+     */
+    public ClaimIdIndex(int maxBufferedPostings, String spillDirectory) {
+        if (maxBufferedPostings < 1) {
+            throw new IllegalArgumentException("maxBufferedPostings must be positive");
+        }
+        this.maxBuffered = maxBufferedPostings;
+        this.spillDirectory = Paths.get(spillDirectory);
+        int capacity = Math.min(maxBufferedPostings, 1024);
+        this.keyHi = new long[capacity];
+        this.keyLo = new long[capacity];
+        this.docs = new int[capacity];
+    }
+
+    /**
+     * Index the claim IDs and name / date of birth pairs of one document
+     * @param documentName Name reported back by queries, e.g. the file path
+     * @param info Extraction result for the document
+     * @throws IOException if a spill run cannot be written
+     */
+    public void add(String documentName, PatientInfo info) throws IOException {
+        int doc = documentNumber(documentName);
+
+        for (String claimId : info.getClaimIds()) {
+            long[] key = encodeClaimId(claimId);
+            if (key != null) {
+                addPosting(key[0], key[1], doc);
+            } else {
+                // The extractor patterns cap IDs at 15 characters, so this should stay at zero
+                droppedClaimIds++;
+            }
+        }
+
+        for (String name : info.getPatientNames()) {
+            for (String dob : info.getDatesOfBirth()) {
+                long[] key = encodePatient(name, dob);
+                addPosting(key[0], key[1], doc);
+            }
+        }
+    }
+
+    /**
+     * Sort and merge everything added so far into the memory-mapped lookup file.
+     * Documents can still be added afterwards; call build() again before querying.
+     * @throws IOException if runs cannot be merged or mapped
+     */
+    public void build() throws IOException {
+        if (buffered == 0 && runs.isEmpty()) {
+            return;
+        }
+        spill();
+
+        // The previous merge result takes part in the new merge as an ordinary run
+        List<Path> inputs = new ArrayList<>(runs);
+        if (mergedFile != null) {
+            inputs.add(mergedFile);
+        }
+
+        Path output = Files.createTempFile(spillDirectory, "claim-index-", ".idx");
+        long count = mergeRuns(inputs, output);
+
+        unmap();
+        for (Path input : inputs) {
+            delete(input);
+        }
+        runs.clear();
+
+        mergedFile = output;
+        mergedCount = count;
+        mergedChunks = map(output, count);
+    }
+
+    /**
+     * Find the documents that mention a claim ID
+     * @param claimId Claim ID as extracted, matched case-insensitively
+     * @return Document names in the order they were first added
+     */
+    public List<String> documentsForClaim(String claimId) {
+        long[] key = encodeClaimId(claimId);
+        return key == null ? new ArrayList<>() : documentsFor(key[0], key[1]);
+    }
+
+    /**
+     * Find the documents that mention a patient name together with a date of birth
+     * @param name Patient name, matched case- and whitespace-insensitively
+     * @param dateOfBirth Date of birth as written in the documents
+     * @return Document names in the order they were first added
+     */
+    public List<String> documentsForPatient(String name, String dateOfBirth) {
+        long[] key = encodePatient(name, dateOfBirth);
+        return documentsFor(key[0], key[1]);
+    }
+
+    /**
+     * Find every claim ID referenced by more than one document
+     * @return Map of claim ID to the documents that mention it
+     */
+    public Map<String, List<String>> claimIdsInMultipleDocuments() {
+        checkBuilt();
+        Map<String, List<String>> shared = new LinkedHashMap<>();
+
+        long i = 0;
+        while (i < mergedCount) {
+            long hi = hiAt(i);
+            long lo = loAt(i);
+            long end = i + 1;
+            while (end < mergedCount && hiAt(end) == hi && loAt(end) == lo) {
+                end++;
+            }
+            if (end - i > 1 && hi >= 0) {
+                List<String> names = new ArrayList<>();
+                for (long j = i; j < end; j++) {
+                    names.add(documents.get(docAt(j)));
+                }
+                shared.put(decodeClaimId(hi, lo), names);
+            }
+            i = end;
+        }
+
+        return shared;
+    }
+
+    /**
+     * Delete all run and merged files
+     */
+    @Override
+    public void close() throws IOException {
+        unmap();
+        for (Path run : runs) {
+            delete(run);
+        }
+        runs.clear();
+        if (mergedFile != null) {
+            delete(mergedFile);
+            mergedFile = null;
+        }
+        mergedCount = 0;
+    }
+
+    /**
+     * Number of claim IDs skipped by {@link #add(String, PatientInfo)} because
+     * they are longer than 24 characters or contain characters other than A-Z and 0-9
+     */
+    public long getDroppedClaimIds() {
+        return droppedClaimIds;
+    }
+
+    private int documentNumber(String documentName) {
+        Integer number = documentNumbers.get(documentName);
+        if (number == null) {
+            number = documents.size();
+            documents.add(documentName);
+            documentNumbers.put(documentName, number);
+        }
+        return number;
+    }
+
+    private void addPosting(long hi, long lo, int doc) throws IOException {
+        if (buffered == keyHi.length) {
+            if (buffered >= maxBuffered) {
+                spill();
+            } else {
+                int capacity = (int) Math.min((long) maxBuffered, 2L * keyHi.length);
+                keyHi = Arrays.copyOf(keyHi, capacity);
+                keyLo = Arrays.copyOf(keyLo, capacity);
+                docs = Arrays.copyOf(docs, capacity);
+            }
+        }
+        keyHi[buffered] = hi;
+        keyLo[buffered] = lo;
+        docs[buffered] = doc;
+        buffered++;
+    }
+
+    private List<String> documentsFor(long hi, long lo) {
+        checkBuilt();
+        List<String> names = new ArrayList<>();
+
+        // Binary search for the first record with this key
+        long low = 0;
+        long high = mergedCount;
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            if (compare(hiAt(mid), loAt(mid), 0, hi, lo, 0) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        for (long i = low; i < mergedCount && hiAt(i) == hi && loAt(i) == lo; i++) {
+            names.add(documents.get(docAt(i)));
+        }
+        return names;
+    }
+
+    private void checkBuilt() {
+        if (buffered > 0 || !runs.isEmpty()) {
+            throw new IllegalStateException("Documents were added since the last build(); call build() first");
+        }
+    }
+
+    // ---- Key encoding ----
+
+    /**
+     * Pack a claim ID into two longs, 12 base-37 characters each. Digit 0 marks
+     * padding, so every ID of up to 24 characters has a distinct, reversible key
+     * with the sign bit of the high word clear.
+     */
+    static long[] encodeClaimId(String claimId) {
+        String id = claimId.trim().toUpperCase(Locale.ROOT);
+        if (id.isEmpty() || id.length() > MAX_CLAIM_ID_LENGTH) {
+            return null;
+        }
+
+        long[] key = new long[2];
+        for (int part = 0; part < 2; part++) {
+            long value = 0;
+            for (int i = part * CHARS_PER_LONG; i < (part + 1) * CHARS_PER_LONG; i++) {
+                int digit = 0;
+                if (i < id.length()) {
+                    digit = ALPHABET.indexOf(id.charAt(i)) + 1;
+                    if (digit == 0) {
+                        return null;
+                    }
+                }
+                value = value * 37 + digit;
+            }
+            key[part] = value;
+        }
+        return key;
+    }
+
+    static String decodeClaimId(long hi, long lo) {
+        StringBuilder id = new StringBuilder(MAX_CLAIM_ID_LENGTH);
+        appendDecoded(id, hi);
+        appendDecoded(id, lo);
+        return id.toString();
+    }
+
+    private static void appendDecoded(StringBuilder id, long value) {
+        char[] chars = new char[CHARS_PER_LONG];
+        for (int i = CHARS_PER_LONG - 1; i >= 0; i--) {
+            int digit = (int) (value % 37);
+            chars[i] = digit == 0 ? 0 : ALPHABET.charAt(digit - 1);
+            value /= 37;
+        }
+        for (char c : chars) {
+            if (c != 0) {
+                id.append(c);
+            }
+        }
+    }
+
+    /**
+     * Hash a name and date of birth into two longs with the sign bit of the high
+     * word set, which keeps patient keys apart from claim ID keys
+     */
+    static long[] encodePatient(String name, String dateOfBirth) {
+        String normalized = name.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT)
+                + '\u0000' + dateOfBirth.trim().toLowerCase(Locale.ROOT);
+        byte[] bytes = normalized.getBytes(StandardCharsets.UTF_8);
+        return new long[] {hash(bytes, 0xcbf29ce484222325L) | Long.MIN_VALUE, hash(bytes, 0x84222325cbf29ce4L)};
+    }
+
+    private static long hash(byte[] bytes, long seed) {
+        // FNV-1a followed by a murmur3 finalizer
+        long h = seed;
+        for (byte b : bytes) {
+            h ^= b & 0xFF;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    // ---- Sorting, spilling and merging ----
+
+    private static int compare(long hi1, long lo1, int doc1, long hi2, long lo2, int doc2) {
+        int c = Long.compare(hi1, hi2);
+        if (c == 0) {
+            c = Long.compare(lo1, lo2);
+        }
+        if (c == 0) {
+            c = Integer.compare(doc1, doc2);
+        }
+        return c;
+    }
+
+    private void spill() throws IOException {
+        if (buffered == 0) {
+            return;
+        }
+        sort(0, buffered - 1);
+
+        Path run = Files.createTempFile(spillDirectory, "claim-index-", ".run");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(run), 1 << 16))) {
+            for (int i = 0; i < buffered; i++) {
+                if (i > 0 && keyHi[i] == keyHi[i - 1] && keyLo[i] == keyLo[i - 1] && docs[i] == docs[i - 1]) {
+                    continue;
+                }
+                out.writeLong(keyHi[i]);
+                out.writeLong(keyLo[i]);
+                out.writeInt(docs[i]);
+            }
+        }
+        runs.add(run);
+        buffered = 0;
+    }
+
+    private void sort(int from, int to) {
+        // Quicksort over the parallel arrays, recursing into the smaller half
+        while (to - from > 16) {
+            int mid = (from + to) >>> 1;
+            long pivotHi = keyHi[mid];
+            long pivotLo = keyLo[mid];
+            int pivotDoc = docs[mid];
+
+            int i = from;
+            int j = to;
+            while (i <= j) {
+                while (compare(keyHi[i], keyLo[i], docs[i], pivotHi, pivotLo, pivotDoc) < 0) {
+                    i++;
+                }
+                while (compare(keyHi[j], keyLo[j], docs[j], pivotHi, pivotLo, pivotDoc) > 0) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(i++, j--);
+                }
+            }
+
+            if (j - from < to - i) {
+                sort(from, j);
+                from = i;
+            } else {
+                sort(i, to);
+                to = j;
+            }
+        }
+
+        for (int i = from + 1; i <= to; i++) {
+            for (int j = i; j > from
+                    && compare(keyHi[j - 1], keyLo[j - 1], docs[j - 1], keyHi[j], keyLo[j], docs[j]) > 0; j--) {
+                swap(j, j - 1);
+            }
+        }
+    }
+
+    private void swap(int a, int b) {
+        long hi = keyHi[a];
+        keyHi[a] = keyHi[b];
+        keyHi[b] = hi;
+        long lo = keyLo[a];
+        keyLo[a] = keyLo[b];
+        keyLo[b] = lo;
+        int doc = docs[a];
+        docs[a] = docs[b];
+        docs[b] = doc;
+    }
+
+    private static long mergeRuns(List<Path> inputs, Path output) throws IOException {
+        List<RunReader> readers = new ArrayList<>();
+        PriorityQueue<RunReader> queue = new PriorityQueue<>(
+                (a, b) -> compare(a.hi, a.lo, a.doc, b.hi, b.lo, b.doc));
+        long count = 0;
+
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(output), 1 << 16))) {
+            for (Path input : inputs) {
+                RunReader reader = new RunReader(input);
+                readers.add(reader);
+                if (reader.next()) {
+                    queue.add(reader);
+                }
+            }
+
+            boolean first = true;
+            long lastHi = 0;
+            long lastLo = 0;
+            int lastDoc = 0;
+            while (!queue.isEmpty()) {
+                RunReader reader = queue.poll();
+                if (first || reader.hi != lastHi || reader.lo != lastLo || reader.doc != lastDoc) {
+                    out.writeLong(reader.hi);
+                    out.writeLong(reader.lo);
+                    out.writeInt(reader.doc);
+                    lastHi = reader.hi;
+                    lastLo = reader.lo;
+                    lastDoc = reader.doc;
+                    first = false;
+                    count++;
+                }
+                if (reader.next()) {
+                    queue.add(reader);
+                }
+            }
+        } finally {
+            for (RunReader reader : readers) {
+                reader.close();
+            }
+        }
+
+        return count;
+    }
+
+    private static MappedByteBuffer[] map(Path file, long count) throws IOException {
+        long recordsPerChunk = 1L << CHUNK_SHIFT;
+        int chunks = (int) ((count + recordsPerChunk - 1) / recordsPerChunk);
+        MappedByteBuffer[] mapped = new MappedByteBuffer[chunks];
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            for (int i = 0; i < chunks; i++) {
+                long first = i * recordsPerChunk;
+                long records = Math.min(recordsPerChunk, count - first);
+                mapped[i] = channel.map(FileChannel.MapMode.READ_ONLY, first * RECORD_BYTES, records * RECORD_BYTES);
+            }
+        }
+        return mapped;
+    }
+
+    /**
+     * Delete a run or merged file. A merged file stays mapped until the garbage
+     * collector releases its buffers, and on Windows a mapped file cannot be
+     * deleted, so in that case deletion is deferred to JVM exit.
+     */
+    private static void delete(Path file) throws IOException {
+        try {
+            Files.deleteIfExists(file);
+        } catch (FileSystemException e) {
+            file.toFile().deleteOnExit();
+        }
+    }
+
+    private void unmap() {
+        // Mapped buffers are released by the garbage collector
+        mergedChunks = new MappedByteBuffer[0];
+    }
+
+    private long hiAt(long record) {
+        return chunk(record).getLong(offset(record));
+    }
+
+    private long loAt(long record) {
+        return chunk(record).getLong(offset(record) + 8);
+    }
+
+    private int docAt(long record) {
+        return chunk(record).getInt(offset(record) + 16);
+    }
+
+    private MappedByteBuffer chunk(long record) {
+        return mergedChunks[(int) (record >>> CHUNK_SHIFT)];
+    }
+
+    private static int offset(long record) {
+        return (int) (record & ((1L << CHUNK_SHIFT) - 1)) * RECORD_BYTES;
+    }
+
+    /**
+     * Sequential reader over one sorted run file
+     */
+    private static class RunReader implements Closeable {
+        private final DataInputStream in;
+        long hi;
+        long lo;
+        int doc;
+
+        RunReader(Path path) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16));
+        }
+
+        boolean next() throws IOException {
+            try {
+                hi = in.readLong();
+                lo = in.readLong();
+                doc = in.readInt();
+                return true;
+            } catch (EOFException e) {
+                return false;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,301 @@
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * IncrementalPatientExtractor - Re-extracts patient information from files
+ * that grow by having pages appended
+ *
+ * For every file it remembers how many bytes have been processed and where
+ * the window near the tail starts. The window starts at a line boundary at
+ * least overlapBytes before the end and always covers an unterminated last
+ * line. When the file has grown, only the bytes from the start of the window
+ * are read, so the cost follows the size of the change rather than the size
+ * of the file.
+ *
+ * Results are kept in two parts: the stable part before the window, whose
+ * complete lines are extracted once and never change, and the window, which
+ * is extracted again on every call and replaces its previous results. Values
+ * read from a partial last line (half a claim ID or name) therefore disappear
+ * once the rest of the line is appended. If the file shrank or its last
+ * processed bytes changed, the file is extracted again from the start. Edits
+ * further back are not detected; call {@link #forget(String)} after such changes.
+ *
+ * The extractor's fallbacks (all dates when no birth date label is found,
+ * regex names when NER finds none) are applied to the combined results of
+ * the whole file. The stable part and the window are extracted separately,
+ * so the result can differ from a full extraction only for a match that
+ * spans the line break at the start of the window (e.g. a label and its
+ * value on separate lines) or NER context across it, and values may be
+ * listed in a different order.
+ */
+public class IncrementalPatientExtractor {
+
+    private static final int DEFAULT_OVERLAP_BYTES = 4096;
+
+    // Bytes before the processed offset checked for changes on the next call
+    private static final int CHECK_BYTES = 256;
+
+    private final PatientInformationExtractor extractor;
+    private final int overlapBytes;
+    private final Map<String, DocumentState> states = new HashMap<>();
+
+    public IncrementalPatientExtractor(PatientInformationExtractor extractor) {
+        this(extractor, DEFAULT_OVERLAP_BYTES);
+    }
+
+    /**
+     * @param extractor Extractor used for each new chunk
+     * @param overlapBytes Minimum number of already processed bytes re-read before new content
+     */
+    public IncrementalPatientExtractor(PatientInformationExtractor extractor, int overlapBytes) {
+        this.extractor = extractor;
+        this.overlapBytes = overlapBytes;
+    }
+
+    /**
+     * Extract patient information from a file, processing only content added since the last call
+     * @param filePath Path to the text file containing patient information
+     * @return PatientInfo for the whole file; the same object is updated on later calls
+     */
+    public PatientInfo extractPatientInfo(String filePath) {
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+            long size = channel.size();
+            DocumentState state = states.get(filePath);
+
+            if (state == null) {
+                state = new DocumentState();
+                states.put(filePath, state);
+                update(state, read(channel, 0, size), 0, size);
+                return state.info;
+            }
+
+            if (size < state.processedBytes || !tailUnchanged(channel, state)) {
+                // The file shrank or the tail we already processed was rewritten, start over
+                state.clear();
+                update(state, read(channel, 0, size), 0, size);
+                return state.info;
+            }
+
+            if (size > state.processedBytes) {
+                update(state, read(channel, state.tailStart, size), state.tailStart, size);
+            }
+            return state.info;
+
+        } catch (IOException e) {
+            System.err.println("Error reading file: " + e.getMessage());
+            return new PatientInfo();
+        }
+    }
+
+    /**
+     * Drop the stored state for a file so the next call extracts it from the start
+     * @param filePath Path previously passed to {@link #extractPatientInfo(String)}
+     */
+    public void forget(String filePath) {
+        states.remove(filePath);
+    }
+
+    private static boolean tailUnchanged(FileChannel channel, DocumentState state) throws IOException {
+        byte[] tail = read(channel, state.checkStart, state.processedBytes);
+        return checksum(tail, 0, tail.length) == state.checksum;
+    }
+
+    /**
+     * Extract newly stable lines and the new tail window, and record the window
+     * @param bytes File content from offset {@code from} (the previous window start,
+     *              a line boundary) to {@code size}
+     */
+    private void update(DocumentState state, byte[] bytes, long from, long size) {
+        // Start the new window at a line boundary at least overlapBytes before the end
+        int tail = Math.max(0, bytes.length - overlapBytes);
+        while (tail > 0 && bytes[tail - 1] != '\n') {
+            tail--;
+        }
+
+        // Lines before the new window are complete and are extracted for the last time
+        if (tail > 0) {
+            state.stable.addAll(extract(decode(bytes, 0, tail)));
+        }
+        state.window = extract(decode(bytes, tail, bytes.length - tail));
+
+        Extraction combined = new Extraction();
+        combined.addAll(state.stable);
+        combined.addAll(state.window);
+
+        // Apply the fallbacks to the whole document, updating the caller's lists in place
+        replace(state.info.getPatientNames(), combined.nerNames.isEmpty() ? combined.regexNames : combined.nerNames);
+        replace(state.info.getDatesOfBirth(),
+                combined.labeledDates.isEmpty() ? combined.allDates : combined.labeledDates);
+        replace(state.info.getClaimIds(), combined.claimIds);
+
+        state.processedBytes = size;
+        state.tailStart = from + tail;
+        state.checkStart = Math.max(from, size - CHECK_BYTES);
+        state.checksum = checksum(bytes, (int) (state.checkStart - from), bytes.length);
+    }
+
+    private Extraction extract(String text) {
+        Extraction extraction = new Extraction();
+        extraction.nerNames.addAll(extractor.extractNamesWithoutFallback(text));
+        extraction.regexNames.addAll(extractor.extractNamesWithRegex(text));
+        extraction.labeledDates.addAll(extractor.extractLabeledDatesOfBirth(text));
+        extraction.allDates.addAll(extractor.extractAllDates(text));
+        extraction.claimIds.addAll(extractor.extractClaimIds(text));
+        return extraction;
+    }
+
+    private static void replace(List<String> target, List<String> values) {
+        target.clear();
+        target.addAll(values);
+    }
+
+    private static void addNew(List<String> target, List<String> values) {
+        for (String value : values) {
+            if (!target.contains(value)) {
+                target.add(value);
+            }
+        }
+    }
+
+    private static byte[] read(FileChannel channel, long from, long to) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) (to - from));
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, from + buffer.position()) < 0) {
+                throw new IOException("File was truncated while reading");
+            }
+        }
+        return buffer.array();
+    }
+
+    private static long checksum(byte[] bytes, int from, int to) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, from, to - from);
+        return crc.getValue();
+    }
+
+    /**
+     * Decode bytes the same way the extractor reads files, one line at a time.
+     * Chunks start at line boundaries, so no character is split.
+     */
+    private static String decode(byte[] bytes, int offset, int length) {
+        StringBuilder content = new StringBuilder();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new ByteArrayInputStream(bytes, offset, length), Charset.defaultCharset()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                content.append(line).append("\n");
+            }
+        } catch (IOException e) {
+            // Cannot happen for an in-memory stream
+            throw new IllegalStateException(e);
+        }
+        return content.toString();
+    }
+
+    /**
+     * Results of every extraction step for part of a file, before fallbacks
+     */
+    private static class Extraction {
+        final List<String> nerNames = new ArrayList<>();
+        final List<String> regexNames = new ArrayList<>();
+        final List<String> labeledDates = new ArrayList<>();
+        final List<String> allDates = new ArrayList<>();
+        final List<String> claimIds = new ArrayList<>();
+
+        void addAll(Extraction other) {
+            addNew(nerNames, other.nerNames);
+            addNew(regexNames, other.regexNames);
+            addNew(labeledDates, other.labeledDates);
+            addNew(allDates, other.allDates);
+            addNew(claimIds, other.claimIds);
+        }
+    }
+
+    /**
+     * Extraction state kept between calls for one file
+     */
+    private static class DocumentState {
+        final PatientInfo info = new PatientInfo();
+        Extraction stable = new Extraction();  // lines before tailStart
+        Extraction window = new Extraction();  // lines from tailStart, replaced on every call
+        long processedBytes;  // file size covered by info
+        long tailStart;       // start of the window re-read on the next call
+        long checkStart;      // start of the bytes covered by checksum
+        long checksum;        // CRC32 of [checkStart, processedBytes)
+
+        void clear() {
+            info.getPatientNames().clear();
+            info.getDatesOfBirth().clear();
+            info.getClaimIds().clear();
+            stable = new Extraction();
+            window = new Extraction();
+        }
+    }
+
+    /**
+     * Check that incremental extraction matches a full extraction for a file
+     * that has pages appended, including claim IDs, a long numeric ID and a
+     * name split across appends with enough characters before the split to
+     * match on their own
+     */
+    public static void main(String[] args) throws IOException {
+        PatientInformationExtractor extractor = new PatientInformationExtractor();
+        IncrementalPatientExtractor incremental = new IncrementalPatientExtractor(extractor, 64);
+
+        String[] pages = {
+            "MEDICAL RECORD\nPatient Name: John Smith\nDate of Birth: January 15, 1985\nClaim ID: CLM123456789\n",
+            "\nPage 2\nVisit date: 03/04/2024\nFollow-up scheduled for 04/01/2024\nClaim Number: ABC987",
+            "654321\nMedical ID: 12345678",
+            "90123\nName: Sarah Johns",
+            "on\nService provided on 05/06/2024\nDOB: 03/22/1992\nClaim No: DEF5554",
+            "44333\n",
+            "\nPage 4\nBilled 06/07/2024\n" + "Notes continue on this page without identifiers.\n".repeat(4)
+        };
+
+        Path file = Files.createTempFile("incremental-check-", ".txt");
+        boolean matches = true;
+        try {
+            for (String page : pages) {
+                Files.write(file, page.getBytes(Charset.defaultCharset()), StandardOpenOption.APPEND);
+
+                PatientInfo info = incremental.extractPatientInfo(file.toString());
+                byte[] all = Files.readAllBytes(file);
+                PatientInfo full = extractor.extractPatientInfo(decode(all, 0, all.length));
+
+                boolean same = sameValues(info.getPatientNames(), full.getPatientNames())
+                        && sameValues(info.getDatesOfBirth(), full.getDatesOfBirth())
+                        && sameValues(info.getClaimIds(), full.getClaimIds());
+                matches &= same;
+                System.out.println((same ? "MATCH    " : "MISMATCH ") + all.length + " bytes");
+                if (!same) {
+                    System.out.println("Incremental:\n" + info + "\nFull:\n" + full);
+                }
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+
+        if (!matches) {
+            System.exit(1);
+        }
+    }
+
+    private static boolean sameValues(List<String> a, List<String> b) {
+        return new HashSet<>(a).equals(new HashSet<>(b));
+    }
+}
@@ -0,0 +1,438 @@
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * NameGazetteer - Dictionary-backed person name finder for use when the
+ * statistical NER models are not available
+ *
+ * First and last names are stored in a double-array trie (two int arrays,
+ * base and check), which keeps millions of names in a few tens of MB. The
+ * compiled trie can be saved to disk and memory-mapped back, so loading
+ * does not parse the name lists or copy the trie onto the heap.
+ *
+ * Compile name lists (one name per line) with:
+ *   java NameGazetteer first-names.txt last-names.txt models/names.gaz
+ */
+public class NameGazetteer {
+
+    // Flags stored on each dictionary entry
+    static final int FIRST_NAME = 1;
+    static final int LAST_NAME = 2;
+
+    private static final int MAGIC = 0x4E47415A; // "NGAZ"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 12;
+
+    // Longest token run reported as a single name
+    private static final int MAX_NAME_TOKENS = 4;
+
+    private final IntBuffer base;
+    private final IntBuffer check;
+    private final int size;
+
+    private NameGazetteer(IntBuffer base, IntBuffer check, int size) {
+        this.base = base;
+        this.check = check;
+        this.size = size;
+    }
+
+    /**
+     * Build a gazetteer from first- and last-name list files
+     * @param firstNamesPath File with one first name per line
+     * @param lastNamesPath File with one last name per line
+     * @return Gazetteer holding both lists
+     * @throws IOException if a list cannot be read
+     */
+    public static NameGazetteer build(String firstNamesPath, String lastNamesPath) throws IOException {
+        Map<String, Integer> entries = new HashMap<>();
+        readNames(firstNamesPath, FIRST_NAME, entries);
+        readNames(lastNamesPath, LAST_NAME, entries);
+        return build(entries);
+    }
+
+    /**
+     * Build a gazetteer from in-memory entries
+     * @param entries Map of name to FIRST_NAME / LAST_NAME flags
+     * @return Gazetteer holding the entries
+     */
+    static NameGazetteer build(Map<String, Integer> entries) {
+        Map<String, Integer> normalized = new HashMap<>();
+        for (Map.Entry<String, Integer> entry : entries.entrySet()) {
+            String name = normalize(entry.getKey());
+            if (!name.isEmpty()) {
+                normalized.merge(name, entry.getValue(), (a, b) -> a | b);
+            }
+        }
+
+        byte[][] keys = new byte[normalized.size()][];
+        int i = 0;
+        for (String name : normalized.keySet()) {
+            keys[i++] = name.getBytes(StandardCharsets.UTF_8);
+        }
+        Arrays.sort(keys, Arrays::compareUnsigned);
+
+        int[] flags = new int[keys.length];
+        for (i = 0; i < keys.length; i++) {
+            flags[i] = normalized.get(new String(keys[i], StandardCharsets.UTF_8));
+        }
+
+        Builder builder = new Builder(keys, flags);
+        builder.build();
+        return new NameGazetteer(IntBuffer.wrap(builder.base, 0, builder.size),
+                IntBuffer.wrap(builder.check, 0, builder.size), builder.size);
+    }
+
+    /**
+     * Memory-map a gazetteer previously written with {@link #save(String)}
+     * @param path Path to the compiled gazetteer file
+     * @return Gazetteer backed by the mapped file
+     * @throws IOException if the file cannot be mapped or is not a gazetteer
+     */
+    public static NameGazetteer load(String path) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.BIG_ENDIAN);
+
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IOException("Not a name gazetteer file: " + path);
+            }
+            int size = buffer.getInt(8);
+            if (channel.size() != HEADER_BYTES + 8L * size) {
+                throw new IOException("Truncated name gazetteer file: " + path);
+            }
+
+            IntBuffer ints = buffer.position(HEADER_BYTES).slice().asIntBuffer();
+            IntBuffer base = ints.duplicate().position(0).limit(size).slice();
+            IntBuffer check = ints.duplicate().position(size).limit(2 * size).slice();
+            return new NameGazetteer(base, check, size);
+        }
+    }
+
+    /**
+     * Write the compiled trie so it can be memory-mapped with {@link #load(String)}
+     * @param path Output file path
+     * @throws IOException if the file cannot be written
+     */
+    public void save(String path) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(path), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(size);
+            for (int i = 0; i < size; i++) {
+                out.writeInt(base.get(i));
+            }
+            for (int i = 0; i < size; i++) {
+                out.writeInt(check.get(i));
+            }
+        }
+    }
+
+    /**
+     * Look up a single token
+     * @param token Name token, matched case-insensitively
+     * @return FIRST_NAME / LAST_NAME flags, or 0 if the token is not a known name
+     */
+    int lookup(CharSequence token) {
+        return lookup(token, 0, token.length());
+    }
+
+    private int lookup(CharSequence text, int start, int end) {
+        int state = 0;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c >= 0x80) {
+                // Rare non-ASCII names go through the UTF-8 byte path
+                String token = normalize(text.subSequence(start, end).toString());
+                return lookupBytes(token.getBytes(StandardCharsets.UTF_8));
+            }
+            if (c >= 'A' && c <= 'Z') {
+                c = (char) (c + ('a' - 'A'));
+            }
+            state = transition(state, c + 1);
+            if (state < 0) {
+                return 0;
+            }
+        }
+        return terminal(state);
+    }
+
+    private int lookupBytes(byte[] key) {
+        int state = 0;
+        for (byte b : key) {
+            state = transition(state, (b & 0xFF) + 1);
+            if (state < 0) {
+                return 0;
+            }
+        }
+        return terminal(state);
+    }
+
+    private int transition(int state, int code) {
+        int next = base.get(state) + code;
+        if (next <= 0 || next >= size || check.get(next) != state) {
+            return -1;
+        }
+        return next;
+    }
+
+    private int terminal(int state) {
+        int leaf = transition(state, 0);
+        return leaf < 0 ? 0 : -base.get(leaf);
+    }
+
+    /**
+     * Find person names in text
+     *
+     * A name is a run of two or more capitalized tokens on the same line,
+     * separated only by spaces, that starts with a known first name and ends
+     * with a known last name. Each token is looked up once, so tagging is
+     * linear in the length of the text.
+     *
+     * @param content Text content
+     * @return List of detected names in order of first appearance
+     */
+    public List<String> findNames(String content) {
+        List<String> names = new ArrayList<>();
+
+        int runStart = -1;      // char offset of the first token in the current run
+        int runTokens = 0;
+        int lastNameEnd = -1;   // end offset of the last token in the run that is a last name
+        int lastNameTokens = 0;
+
+        int i = 0;
+        int length = content.length();
+        while (i <= length) {
+            // Find the next token
+            int start = i;
+            while (start < length && !Character.isLetter(content.charAt(start))) {
+                start++;
+            }
+            int end = start;
+            while (end < length && isNameChar(content, end)) {
+                end++;
+            }
+
+            boolean contiguous = runStart >= 0 && start < length && onlySpaces(content, i, start);
+            int flags = start < length && Character.isUpperCase(content.charAt(start))
+                    ? lookup(content, start, end) : 0;
+
+            if (contiguous && flags != 0 && runTokens < MAX_NAME_TOKENS) {
+                runTokens++;
+                if ((flags & LAST_NAME) != 0) {
+                    lastNameEnd = end;
+                    lastNameTokens = runTokens;
+                }
+            } else {
+                if (runStart >= 0 && lastNameTokens >= 2) {
+                    String name = content.substring(runStart, lastNameEnd).replaceAll("\\s+", " ");
+                    if (!names.contains(name)) {
+                        names.add(name);
+                    }
+                }
+                runStart = -1;
+                runTokens = 0;
+                lastNameTokens = 0;
+                if ((flags & FIRST_NAME) != 0) {
+                    runStart = start;
+                    runTokens = 1;
+                }
+            }
+
+            if (start >= length) {
+                break;
+            }
+            i = end;
+        }
+
+        return names;
+    }
+
+    private static boolean isNameChar(String content, int i) {
+        char c = content.charAt(i);
+        if (Character.isLetter(c)) {
+            return true;
+        }
+        // Keep O'Brien and Smith-Jones as single tokens
+        return (c == '\'' || c == '-') && i + 1 < content.length()
+                && Character.isLetter(content.charAt(i + 1));
+    }
+
+    private static boolean onlySpaces(String content, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = content.charAt(i);
+            if (c != ' ' && c != '\t') {
+                return false;
+            }
+        }
+        return from < to;
+    }
+
+    private static String normalize(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static void readNames(String path, int flag, Map<String, Integer> entries) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(Path.of(path), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String name = normalize(line);
+                if (name.isEmpty() || name.startsWith("#")) {
+                    continue;
+                }
+                entries.merge(name, flag, (a, b) -> a | b);
+            }
+        }
+    }
+
+    /**
+     * Double-array construction over sorted byte keys. Labels are byte + 1,
+     * with label 0 marking the end of a key; the leaf reached through label 0
+     * stores the negated entry flags in its base slot.
+     */
+    private static class Builder {
+        private static final int ALPHABET = 257;
+
+        private final byte[][] keys;
+        private final int[] flags;
+        private int[] base;
+        private int[] check;
+        private int size;
+        private int nextCheckPos = 1;
+
+        Builder(byte[][] keys, int[] flags) {
+            this.keys = keys;
+            this.flags = flags;
+            int capacity = Math.max(1024, keys.length * 4);
+            this.base = new int[capacity];
+            this.check = new int[capacity];
+            Arrays.fill(check, -1);
+        }
+
+        void build() {
+            check[0] = 0;
+            size = 1;
+            if (keys.length > 0) {
+                insert(0, 0, keys.length, 0);
+            }
+        }
+
+        private void insert(int parent, int lo, int hi, int depth) {
+            // Group the key range into siblings by the label at this depth
+            List<int[]> siblings = new ArrayList<>();
+            int i = lo;
+            while (i < hi) {
+                int code = label(keys[i], depth);
+                int j = i + 1;
+                while (j < hi && label(keys[j], depth) == code) {
+                    j++;
+                }
+                siblings.add(new int[] {code, i, j});
+                i = j;
+            }
+
+            int begin = findBase(siblings);
+            base[parent] = begin;
+            for (int[] sibling : siblings) {
+                check[begin + sibling[0]] = parent;
+                size = Math.max(size, begin + sibling[0] + 1);
+            }
+
+            for (int[] sibling : siblings) {
+                int child = begin + sibling[0];
+                if (sibling[0] == 0) {
+                    base[child] = -flags[sibling[1]];
+                } else {
+                    insert(child, sibling[1], sibling[2], depth + 1);
+                }
+            }
+        }
+
+        private int findBase(List<int[]> siblings) {
+            int first = siblings.get(0)[0];
+            int last = siblings.get(siblings.size() - 1)[0];
+
+            int pos = Math.max(first + 1, nextCheckPos) - 1;
+            int filled = 0;
+            boolean firstFree = true;
+            while (true) {
+                pos++;
+                ensureCapacity(pos + ALPHABET);
+                if (check[pos] != -1) {
+                    filled++;
+                    continue;
+                }
+                if (firstFree) {
+                    nextCheckPos = pos;
+                    firstFree = false;
+                }
+
+                int begin = pos - first;
+                if (begin < 1) {
+                    continue;
+                }
+                ensureCapacity(begin + last + 1);
+                boolean fits = true;
+                for (int[] sibling : siblings) {
+                    if (check[begin + sibling[0]] != -1) {
+                        fits = false;
+                        break;
+                    }
+                }
+                if (fits) {
+                    // Skip past densely packed regions on later searches
+                    if ((double) filled / (pos - nextCheckPos + 1) >= 0.95) {
+                        nextCheckPos = pos;
+                    }
+                    return begin;
+                }
+            }
+        }
+
+        private void ensureCapacity(int required) {
+            if (required < base.length) {
+                return;
+            }
+            int capacity = Math.max(required + 1, base.length * 2);
+            int old = check.length;
+            base = Arrays.copyOf(base, capacity);
+            check = Arrays.copyOf(check, capacity);
+            Arrays.fill(check, old, capacity, -1);
+        }
+
+        private static int label(byte[] key, int depth) {
+            return depth < key.length ? (key[depth] & 0xFF) + 1 : 0;
+        }
+    }
+
+    /**
+     * Compile name lists into a memory-mappable gazetteer file
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("Usage: java NameGazetteer <first-names.txt> <last-names.txt> <output.gaz>");
+            return;
+        }
+        NameGazetteer gazetteer = build(args[0], args[1]);
+        gazetteer.save(args[2]);
+        System.out.println("Wrote " + gazetteer.size + " trie slots to " + args[2]);
+    }
+}
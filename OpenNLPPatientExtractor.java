@@ -87,6 +87,13 @@ public class OpenNLPPatientExtractor {
         }
     }
 
+    /**
+     * Check whether all OpenNLP models loaded
+     */
+    boolean hasModels() {
+        return sentenceDetector != null && tokenizer != null && personFinder != null;
+    }
+
     /**
      * Extract patient information from file
      */
@@ -106,7 +113,7 @@ public class OpenNLPPatientExtractor {
     public PatientInfo extractPatientInfo(String text) {
         PatientInfo info = new PatientInfo();
 
-        if (sentenceDetector != null && tokenizer != null && personFinder != null) {
+        if (hasModels()) {
             info.setPatientNames(extractNamesWithOpenNLP(text));
         } else {
             info.setPatientNames(extractNamesWithRegex(text));
@@ -121,41 +128,47 @@ public class OpenNLPPatientExtractor {
     /**
      * Extract names using OpenNLP
      */
-    private List<String> extractNamesWithOpenNLP(String text) {
-        List<String> names = new ArrayList<>();
-
+    List<String> extractNamesWithOpenNLP(String text) {
         try {
-            // Detect sentences
-            String[] sentences = sentenceDetector.sentDetect(text);
-
-            for (String sentence : sentences) {
-                // Tokenize
-                String[] tokens = tokenizer.tokenize(sentence);
-
-                // Find person names
-                Span[] nameSpans = personFinder.find(tokens);
-
-                for (Span span : nameSpans) {
-                    StringBuilder name = new StringBuilder();
-                    for (int i = span.getStart(); i < span.getEnd(); i++) {
-                        if (name.length() > 0) name.append(" ");
-                        name.append(tokens[i]);
-                    }
-
-                    String fullName = name.toString();
-                    if (fullName.length() > 1 && !names.contains(fullName)) {
-                        names.add(fullName);
-                    }
-                }
-            }
-
-            // Clear adaptive data
-            personFinder.clearAdaptiveData();
-
+            return findNamesWithModel(text);
         } catch (Exception e) {
             System.err.println("Error in OpenNLP name extraction: " + e.getMessage());
             return extractNamesWithRegex(text);
         }
+    }
+
+    /**
+     * Extract names with the OpenNLP models only, letting errors through
+     */
+    List<String> findNamesWithModel(String text) {
+        List<String> names = new ArrayList<>();
+
+        // Detect sentences
+        String[] sentences = sentenceDetector.sentDetect(text);
+
+        for (String sentence : sentences) {
+            // Tokenize
+            String[] tokens = tokenizer.tokenize(sentence);
+
+            // Find person names
+            Span[] nameSpans = personFinder.find(tokens);
+
+            for (Span span : nameSpans) {
+                StringBuilder name = new StringBuilder();
+                for (int i = span.getStart(); i < span.getEnd(); i++) {
+                    if (name.length() > 0) name.append(" ");
+                    name.append(tokens[i]);
+                }
+
+                String fullName = name.toString();
+                if (fullName.length() > 1 && !names.contains(fullName)) {
+                    names.add(fullName);
+                }
+            }
+        }
+
+        // Clear adaptive data
+        personFinder.clearAdaptiveData();
 
         return names;
     }
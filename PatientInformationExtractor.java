@@ -12,6 +12,7 @@ import java.util.Properties;
 import java.util.regex.Pattern;
 import java.util.regex.Matcher;
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -31,6 +32,10 @@ public class PatientInformationExtractor {
 
     private StanfordCoreNLP pipeline;
     private AbstractSequenceClassifier<CoreLabel> classifier;
+    private NameGazetteer gazetteer;
+
+    // Compiled name dictionary, built with NameGazetteer.main
+    private static final String GAZETTEER_PATH = "models/names.gaz";
 
     // Regex patterns for various date formats
     private static final String[] DATE_PATTERNS = {
@@ -79,6 +84,24 @@ public class PatientInformationExtractor {
             this.pipeline = null;
             this.classifier = null;
         }
+
+        if (this.pipeline == null && this.classifier == null && new File(GAZETTEER_PATH).exists()) {
+            try {
+                // Dictionary-based fallback for when the NER models are unavailable
+                this.gazetteer = NameGazetteer.load(GAZETTEER_PATH);
+            } catch (IOException e) {
+                System.err.println("Error loading name gazetteer: " + e.getMessage());
+                this.gazetteer = null;
+            }
+        }
+    }
+
+    /**
+     * Check whether the CoreNLP pipeline or CRF classifier loaded
+     * @return true if names are found with a statistical NER model
+     */
+    boolean hasNerModels() {
+        return pipeline != null || classifier != null;
     }
 
     /**
@@ -121,78 +144,79 @@ public class PatientInformationExtractor {
      * @param content Text content
      * @return List of detected patient names
      */
-    private List<String> extractPatientNames(String content) {
+    List<String> extractPatientNames(String content) {
+        List<String> names = extractNamesWithoutFallback(content);
+
+        // If NLP fails, use regex patterns as fallback for common name patterns
+        if (names.isEmpty()) {
+            names.addAll(extractNamesWithRegex(content));
+        }
+
+        return names;
+    }
+
+    /**
+     * Extract patient names with NER or the gazetteer, without the regex fallback
+     * @param content Text content
+     * @return List of detected patient names, empty if extraction failed
+     */
+    List<String> extractNamesWithoutFallback(String content) {
         List<String> names = new ArrayList<>();
 
         try {
-            if (pipeline != null) {
-                // Use Stanford CoreNLP for NER
-                Annotation document = new Annotation(content);
-                pipeline.annotate(document);
-
-                List<CoreMap> sentences = document.get(CoreAnnotations.SentencesAnnotation.class);
-                for (CoreMap sentence : sentences) {
-                    List<CoreLabel> tokens = sentence.get(CoreAnnotations.TokensAnnotation.class);
-
-                    StringBuilder currentName = new StringBuilder();
-                    for (CoreLabel token : tokens) {
-                        String ne = token.get(CoreAnnotations.NamedEntityTagAnnotation.class);
-                        String word = token.get(CoreAnnotations.TextAnnotation.class);
-
-                        if ("PERSON".equals(ne)) {
-                            if (currentName.length() > 0) {
-                                currentName.append(" ");
-                            }
-                            currentName.append(word);
-                        } else {
-                            if (currentName.length() > 0) {
-                                String fullName = currentName.toString().trim();
-                                if (fullName.length() > 1 && !names.contains(fullName)) {
-                                    names.add(fullName);
-                                }
-                                currentName = new StringBuilder();
-                            }
-                        }
-                    }
+            if (hasNerModels()) {
+                names.addAll(extractNamesWithNer(content));
+            } else if (gazetteer != null) {
+                // Use dictionary lookup when no NER model could be loaded
+                names.addAll(gazetteer.findNames(content));
+            }
+        } catch (Exception e) {
+            System.err.println("Error in name extraction: " + e.getMessage());
+        }
 
-                    // Add any remaining name
-                    if (currentName.length() > 0) {
-                        String fullName = currentName.toString().trim();
-                        if (fullName.length() > 1 && !names.contains(fullName)) {
-                            names.add(fullName);
-                        }
-                    }
-                }
-            } else if (classifier != null) {
-                // Use CRF classifier as fallback
-                String classifiedText = classifier.classifyToString(content);
-                // Parse the classified text to extract PERSON entities
-                String[] lines = classifiedText.split("\\n");
-                StringBuilder currentName = new StringBuilder();
+        return names;
+    }
 
-                for (String line : lines) {
-                    String[] parts = line.split("\\s+");
-                    if (parts.length >= 2) {
-                        String word = parts[0];
-                        String tag = parts[parts.length - 1];
+    /**
+     * Extract patient names with the CoreNLP pipeline or CRF classifier only.
+     * Errors are not caught, so callers can tell a failure from finding no names.
+     * @param content Text content
+     * @return List of detected patient names
+     */
+    List<String> extractNamesWithNer(String content) {
+        List<String> names = new ArrayList<>();
 
-                        if ("PERSON".equals(tag)) {
-                            if (currentName.length() > 0) {
-                                currentName.append(" ");
-                            }
-                            currentName.append(word);
-                        } else {
-                            if (currentName.length() > 0) {
-                                String fullName = currentName.toString().trim();
-                                if (fullName.length() > 1 && !names.contains(fullName)) {
-                                    names.add(fullName);
-                                }
-                                currentName = new StringBuilder();
+        if (pipeline != null) {
+            // Use Stanford CoreNLP for NER
+            Annotation document = new Annotation(content);
+            pipeline.annotate(document);
+
+            List<CoreMap> sentences = document.get(CoreAnnotations.SentencesAnnotation.class);
+            for (CoreMap sentence : sentences) {
+                List<CoreLabel> tokens = sentence.get(CoreAnnotations.TokensAnnotation.class);
+
+                StringBuilder currentName = new StringBuilder();
+                for (CoreLabel token : tokens) {
+                    String ne = token.get(CoreAnnotations.NamedEntityTagAnnotation.class);
+                    String word = token.get(CoreAnnotations.TextAnnotation.class);
+
+                    if ("PERSON".equals(ne)) {
+                        if (currentName.length() > 0) {
+                            currentName.append(" ");
+                        }
+                        currentName.append(word);
+                    } else {
+                        if (currentName.length() > 0) {
+                            String fullName = currentName.toString().trim();
+                            if (fullName.length() > 1 && !names.contains(fullName)) {
+                                names.add(fullName);
                             }
+                            currentName = new StringBuilder();
                         }
                     }
                 }
 
+                // Add any remaining name
                 if (currentName.length() > 0) {
                     String fullName = currentName.toString().trim();
                     if (fullName.length() > 1 && !names.contains(fullName)) {
@@ -200,13 +224,42 @@ public class PatientInformationExtractor {
                     }
                 }
             }
-        } catch (Exception e) {
-            System.err.println("Error in name extraction: " + e.getMessage());
-        }
+        } else if (classifier != null) {
+            // Use CRF classifier as fallback
+            String classifiedText = classifier.classifyToString(content);
+            // Parse the classified text to extract PERSON entities
+            String[] lines = classifiedText.split("\\n");
+            StringBuilder currentName = new StringBuilder();
+
+            for (String line : lines) {
+                String[] parts = line.split("\\s+");
+                if (parts.length >= 2) {
+                    String word = parts[0];
+                    String tag = parts[parts.length - 1];
+
+                    if ("PERSON".equals(tag)) {
+                        if (currentName.length() > 0) {
+                            currentName.append(" ");
+                        }
+                        currentName.append(word);
+                    } else {
+                        if (currentName.length() > 0) {
+                            String fullName = currentName.toString().trim();
+                            if (fullName.length() > 1 && !names.contains(fullName)) {
+                                names.add(fullName);
+                            }
+                            currentName = new StringBuilder();
+                        }
+                    }
+                }
+            }
 
-        // If NLP fails, use regex patterns as fallback for common name patterns
-        if (names.isEmpty()) {
-            names.addAll(extractNamesWithRegex(content));
+            if (currentName.length() > 0) {
+                String fullName = currentName.toString().trim();
+                if (fullName.length() > 1 && !names.contains(fullName)) {
+                    names.add(fullName);
+                }
+            }
         }
 
         return names;
@@ -217,7 +270,7 @@ public class PatientInformationExtractor {
      * @param content Text content
      * @return List of potential names
      */
-    private List<String> extractNamesWithRegex(String content) {
+    List<String> extractNamesWithRegex(String content) {
         List<String> names = new ArrayList<>();
 
         // Common patterns for names in medical documents
@@ -249,7 +302,23 @@ public class PatientInformationExtractor {
      * @param content Text content
      * @return List of detected dates
      */
-    private List<String> extractDatesOfBirth(String content) {
+    List<String> extractDatesOfBirth(String content) {
+        List<String> dates = extractLabeledDatesOfBirth(content);
+
+        // If no birth-specific dates found, extract all dates and let user filter
+        if (dates.isEmpty()) {
+            dates.addAll(extractAllDates(content));
+        }
+
+        return dates;
+    }
+
+    /**
+     * Extract dates that follow a birth date label
+     * @param content Text content
+     * @return List of labeled dates of birth
+     */
+    List<String> extractLabeledDatesOfBirth(String content) {
         List<String> dates = new ArrayList<>();
 
         // Look for dates in context of birth-related keywords
@@ -279,16 +348,24 @@ public class PatientInformationExtractor {
             }
         }
 
-        // If no birth-specific dates found, extract all dates and let user filter
-        if (dates.isEmpty()) {
-            for (String datePattern : DATE_PATTERNS) {
-                Pattern p = Pattern.compile(datePattern, Pattern.CASE_INSENSITIVE);
-                Matcher m = p.matcher(content);
-                while (m.find()) {
-                    String date = m.group().trim();
-                    if (!dates.contains(date)) {
-                        dates.add(date);
-                    }
+        return dates;
+    }
+
+    /**
+     * Extract every date regardless of context
+     * @param content Text content
+     * @return List of detected dates
+     */
+    List<String> extractAllDates(String content) {
+        List<String> dates = new ArrayList<>();
+
+        for (String datePattern : DATE_PATTERNS) {
+            Pattern p = Pattern.compile(datePattern, Pattern.CASE_INSENSITIVE);
+            Matcher m = p.matcher(content);
+            while (m.find()) {
+                String date = m.group().trim();
+                if (!dates.contains(date)) {
+                    dates.add(date);
                 }
             }
         }
@@ -301,7 +378,7 @@ public class PatientInformationExtractor {
      * @param content Text content
      * @return List of detected claim IDs
      */
-    private List<String> extractClaimIds(String content) {
+    List<String> extractClaimIds(String content) {
         List<String> claimIds = new ArrayList<>();
 
         for (String pattern : CLAIM_ID_PATTERNS) {
@@ -386,6 +463,7 @@ class PatientInfo {
     private List<String> patientNames = new ArrayList<>();
     private List<String> datesOfBirth = new ArrayList<>();
     private List<String> claimIds = new ArrayList<>();
+    private String nameEngine;
 
     // Getters and setters
     public List<String> getPatientNames() {
@@ -412,6 +490,14 @@ class PatientInfo {
         this.claimIds = claimIds;
     }
 
+    public String getNameEngine() {
+        return nameEngine;
+    }
+
+    public void setNameEngine(String nameEngine) {
+        this.nameEngine = nameEngine;
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
@@ -444,6 +530,10 @@ class PatientInfo {
             }
         }
 
+        if (nameEngine != null) {
+            sb.append("\n\nName Engine: ").append(nameEngine);
+        }
+
         sb.append("\n\n=====================================");
 
         return sb.toString();